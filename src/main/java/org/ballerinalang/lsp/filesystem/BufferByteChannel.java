@@ -0,0 +1,82 @@
+package org.ballerinalang.lsp.filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Read-only channel over file content held by the {@link ContentStore}.
+ */
+public class BufferByteChannel implements SeekableByteChannel {
+    private final ByteBuffer content;
+    private boolean open = true;
+
+    BufferByteChannel(ByteBuffer content) {
+        this.content = content;
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (!content.hasRemaining()) {
+            return -1;
+        }
+        int n = Math.min(dst.remaining(), content.remaining());
+        ByteBuffer slice = content.slice();
+        slice.limit(n);
+        dst.put(slice);
+        content.position(content.position() + n);
+        return n;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return content.position();
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+        // Positions past the end read as end of stream
+        content.position((int) Math.min(newPosition, content.limit()));
+        return this;
+    }
+
+    @Override
+    public synchronized long size() throws IOException {
+        ensureOpen();
+        return content.limit();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.ballerinalang.lsp.filesystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * In-memory copy of file contents served to read-only channels. Recently used
+ * files are kept as raw buffers (optionally off-heap); files not read for the
+ * configured period are compressed in place by a background sweep and inflated
+ * again on their next read, so idle sessions stay resident at a fraction of the
+ * memory without going back to disk.
+ *
+ * Entries are validated against the file's size and modification time on every
+ * lookup and dropped by the provider when the file is written or deleted.
+ */
+public class ContentStore {
+    private static final long MAX_FILE_SIZE = 8 * 1024 * 1024;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long coldAfterMillis;
+    private final boolean offHeap;
+    private final ScheduledExecutorService sweeper;
+
+    private static class Entry {
+        private long size = -1;
+        private long lastModified;
+        private ByteBuffer hot;
+        private byte[] cold;
+        private volatile long lastAccess;
+    }
+
+    public ContentStore(long coldAfterMillis, boolean offHeap) {
+        if (coldAfterMillis <= 0) {
+            throw new IllegalArgumentException("Cold period must be positive: " + coldAfterMillis);
+        }
+        this.coldAfterMillis = coldAfterMillis;
+        this.offHeap = offHeap;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "web-bala-content-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(coldAfterMillis / 2, 1);
+        sweeper.scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns a read-only view of the file's content, loading or inflating it as
+     * needed, or null if the file is too large to be held in memory.
+     */
+    ByteBuffer get(String key, Path realPath, long size, long lastModified) throws IOException {
+        if (size > MAX_FILE_SIZE) {
+            return null;
+        }
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+        synchronized (entry) {
+            entry.lastAccess = System.currentTimeMillis();
+            if (entry.size != size || entry.lastModified != lastModified) {
+                entry.cold = null;
+                entry.hot = load(realPath, (int) size);
+                if (entry.hot == null) {
+                    entries.remove(key, entry);
+                    return null;
+                }
+                entry.size = size;
+                entry.lastModified = lastModified;
+            } else if (entry.hot == null) {
+                entry.hot = inflate(entry.cold, (int) size);
+                entry.cold = null;
+            }
+            return entry.hot.asReadOnlyBuffer();
+        }
+    }
+
+    void invalidate(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Compresses the entries that have not been read for the cold period.
+     */
+    void sweep() {
+        sweep(System.currentTimeMillis());
+    }
+
+    // Sweep as of the given time, so tests can age entries without waiting
+    void sweep(long nowMillis) {
+        long threshold = nowMillis - coldAfterMillis;
+        for (Entry entry : entries.values()) {
+            if (entry.lastAccess > threshold) {
+                continue;
+            }
+            synchronized (entry) {
+                if (entry.hot != null && entry.lastAccess <= threshold) {
+                    entry.cold = deflate(entry.hot);
+                    entry.hot = null;
+                }
+            }
+        }
+    }
+
+    public long getHotBytes() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                total += entry.hot != null ? entry.hot.capacity() : 0;
+            }
+        }
+        return total;
+    }
+
+    public long getColdBytes() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            synchronized (entry) {
+                total += entry.cold != null ? entry.cold.length : 0;
+            }
+        }
+        return total;
+    }
+
+    void close() {
+        sweeper.shutdownNow();
+        entries.clear();
+    }
+
+    private ByteBuffer load(Path realPath, int size) throws IOException {
+        ByteBuffer buffer = allocate(size);
+        try (FileChannel channel = FileChannel.open(realPath, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // Keep reading until the buffer is full
+            }
+            // A file that changed size while being read is not cached
+            if (buffer.hasRemaining() || channel.size() != size) {
+                return null;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private ByteBuffer allocate(int size) {
+        return offHeap ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    private static byte[] deflate(ByteBuffer content) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(content.duplicate());
+            deflater.finish();
+            byte[] chunk = new byte[8192];
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(content.remaining() / 4, 64));
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private ByteBuffer inflate(byte[] compressed, int size) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteBuffer buffer = allocate(size);
+            while (buffer.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(buffer) == 0 && inflater.needsInput()) {
+                    break;
+                }
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException("Corrupt compressed content: expected " + size + " bytes");
+            }
+            buffer.flip();
+            return buffer;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed content", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.ballerinalang.lsp.filesystem;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Recording of the file operations served by a provider, installed with
+ * {@link WebBalaFileSystemProvider#setTrace(FileAccessTrace)}. Traces are saved as
+ * tab-separated lines so they can be replayed by a load test or inspected by hand.
+ */
+public class FileAccessTrace {
+    // Sizes recorded for operations that failed and for paths found to be directories
+    public static final long FAILED = -1;
+    public static final long DIRECTORY = -2;
+
+    public enum Op {
+        CHECK_ACCESS, READ_ATTRIBUTES, OPEN_READ, OPEN_WRITE, READ, WRITE, CLOSE, CREATE_DIRECTORY, DELETE
+    }
+
+    /**
+     * One traced operation. The path is relative to the provider's base directory,
+     * and the start time is relative to the creation of the trace.
+     */
+    public static class Event {
+        private final long startNanos;
+        private final Op op;
+        private final long size;
+        private final long durationNanos;
+        private final String path;
+
+        public Event(long startNanos, Op op, long size, long durationNanos, String path) {
+            this.startNanos = startNanos;
+            this.op = op;
+            this.size = size;
+            this.durationNanos = durationNanos;
+            this.path = path;
+        }
+
+        public long getStartNanos() {
+            return startNanos;
+        }
+
+        public Op getOp() {
+            return op;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public String getPath() {
+            return path;
+        }
+    }
+
+    private final long origin = System.nanoTime();
+    private final ConcurrentLinkedQueue<Event> events = new ConcurrentLinkedQueue<>();
+
+    void record(Op op, String path, long size, long startNanos) {
+        events.add(new Event(startNanos - origin, op, size, System.nanoTime() - startNanos, path));
+    }
+
+    /**
+     * Returns the recorded events in start order.
+     */
+    public List<Event> getEvents() {
+        List<Event> sorted = new ArrayList<>(events);
+        sorted.sort(Comparator.comparingLong(Event::getStartNanos));
+        return sorted;
+    }
+
+    public void writeTo(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Event event : getEvents()) {
+                writer.write(event.startNanos + "\t" + event.op + "\t" + event.size + "\t"
+                        + event.durationNanos + "\t" + event.path);
+                writer.newLine();
+            }
+        }
+    }
+
+    public static List<Event> read(Path file) throws IOException {
+        List<Event> events = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] fields = line.split("\t", 5);
+                if (fields.length != 5) {
+                    throw new IOException("Malformed trace line: " + line);
+                }
+                events.add(new Event(Long.parseLong(fields[0]), Op.valueOf(fields[1]), Long.parseLong(fields[2]),
+                        Long.parseLong(fields[3]), fields[4]));
+            }
+        }
+        return events;
+    }
+}
@@ -0,0 +1,117 @@
+package org.ballerinalang.lsp.filesystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary snapshot of the provider's line indexes, written when a session's file
+ * system is closed and read back on the next {@code newFileSystem} so a restarted
+ * language server does not have to reread and rescan each file to map positions.
+ *
+ * Entries are keyed by path relative to the base directory, with the size and
+ * modification time the index matched. Line starts are stored as variable-length
+ * deltas, which keeps typical source files to about a byte per line.
+ */
+public class IndexSnapshot {
+    private static final int MAGIC = 0x57424958; // "WBIX"
+    // Version 1 also carried content hashes
+    private static final int VERSION = 2;
+
+    private IndexSnapshot() {
+    }
+
+    static void write(Path file, Path baseDir, Map<String, LineIndex> entries) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(baseDir.toString());
+            out.writeInt(entries.size());
+            for (Map.Entry<String, LineIndex> entry : entries.entrySet()) {
+                LineIndex lineIndex = entry.getValue();
+                long[] lineStarts;
+                long size;
+                long lastModified;
+                synchronized (lineIndex) {
+                    lineStarts = lineIndex.toLineStarts();
+                    size = lineIndex.getLength();
+                    lastModified = lineIndex.getLastModified();
+                }
+                out.writeUTF(entry.getKey());
+                out.writeLong(size);
+                out.writeLong(lastModified);
+                writeVarLong(out, lineStarts.length);
+                for (int i = 1; i < lineStarts.length; i++) {
+                    writeVarLong(out, lineStarts[i] - lineStarts[i - 1]);
+                }
+            }
+        }
+        // Replace the previous snapshot in one step so a crash never leaves a torn file
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot, returning no entries when the file is missing, was written
+     * for another base directory or by an incompatible version.
+     */
+    static Map<String, LineIndex> read(Path file, Path baseDir) throws IOException {
+        Map<String, LineIndex> entries = new HashMap<>();
+        if (!Files.isRegularFile(file)) {
+            return entries;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !in.readUTF().equals(baseDir.toString())) {
+                return entries;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                // A file of n bytes has at most n + 1 lines
+                long lineCount = readVarLong(in);
+                if (size < 0 || lineCount < 1 || lineCount > size + 1 || lineCount > Integer.MAX_VALUE) {
+                    throw new IOException("Invalid line count " + lineCount + " for " + key);
+                }
+                long[] lineStarts = new long[(int) lineCount];
+                for (int line = 1; line < lineStarts.length; line++) {
+                    long delta = readVarLong(in);
+                    if (delta < 1 || delta > size - lineStarts[line - 1]) {
+                        throw new IOException("Invalid line start in index snapshot for " + key);
+                    }
+                    lineStarts[line] = lineStarts[line - 1] + delta;
+                }
+                entries.put(key, LineIndex.of(lineStarts, size, lastModified));
+            }
+        }
+        return entries;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed length in index snapshot");
+    }
+}
@@ -0,0 +1,203 @@
+package org.ballerinalang.lsp.filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Byte offsets of the line starts of a single file, used to map LSP line/column
+ * positions to byte offsets with a binary search instead of a content scan.
+ *
+ * Columns are byte offsets within the line, not the UTF-16 code units of LSP
+ * {@code Position.character}; converting between the two is up to the caller.
+ * Lines are terminated by '\n', so a "\r\n" terminator leaves the '\r' as the
+ * last byte of the line.
+ */
+public class LineIndex {
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private long[] lineStarts = new long[16];
+    private int lineCount;
+    private long length;
+    // Modification time of the file when the index last matched it, in milliseconds
+    private long lastModified = -1;
+    // Offset from which the indexed content no longer matches the file, or -1 when up to date
+    private long dirtyFrom = -1;
+
+    LineIndex() {
+        lineStarts[0] = 0;
+        lineCount = 1;
+    }
+
+    static LineIndex of(long[] lineStarts, long length, long lastModified) {
+        LineIndex index = new LineIndex();
+        index.lineStarts = lineStarts.length > 0 ? lineStarts : index.lineStarts;
+        index.lineCount = Math.max(lineStarts.length, 1);
+        index.length = length;
+        index.lastModified = lastModified;
+        return index;
+    }
+
+    static LineIndex build(SeekableByteChannel channel, long lastModified) throws IOException {
+        LineIndex index = new LineIndex();
+        index.rescan(channel, 0);
+        index.lastModified = lastModified;
+        return index;
+    }
+
+    public synchronized int getLineCount() {
+        return lineCount;
+    }
+
+    public synchronized long getLength() {
+        return length;
+    }
+
+    public synchronized long getLineStart(int line) {
+        if (line < 0 || line >= lineCount) {
+            throw new IndexOutOfBoundsException("Line out of range: " + line);
+        }
+        return lineStarts[line];
+    }
+
+    /**
+     * Returns the byte offset of the given zero-based line and byte column. The
+     * column is clamped to the end of the line.
+     */
+    public synchronized long getOffset(int line, int byteColumn) {
+        if (byteColumn < 0) {
+            throw new IndexOutOfBoundsException("Column out of range: " + byteColumn);
+        }
+        long start = getLineStart(line);
+        long end = (line + 1 < lineCount) ? lineStarts[line + 1] - 1 : length;
+        return Math.min(start + byteColumn, end);
+    }
+
+    /**
+     * Returns the zero-based line containing the given byte offset.
+     */
+    public synchronized int getLine(long offset) {
+        if (offset < 0 || offset > length) {
+            throw new IndexOutOfBoundsException("Offset out of range: " + offset);
+        }
+        int pos = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+        return pos >= 0 ? pos : -pos - 2;
+    }
+
+    /**
+     * Returns the byte column of the given byte offset within its line.
+     */
+    public synchronized int getByteColumn(long offset) {
+        return (int) (offset - lineStarts[getLine(offset)]);
+    }
+
+    synchronized long[] toLineStarts() {
+        return Arrays.copyOf(lineStarts, lineCount);
+    }
+
+    synchronized long getLastModified() {
+        return lastModified;
+    }
+
+    synchronized void setLastModified(long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Returns whether the index was last brought up to date with a file of this size
+     * and modification time; any other file content may not match it.
+     */
+    synchronized boolean matches(long size, long lastModified) {
+        return length == size && this.lastModified == lastModified;
+    }
+
+    synchronized boolean isStale() {
+        return dirtyFrom >= 0;
+    }
+
+    /**
+     * Records bytes written through a provider channel to the file this index describes. Writes reaching the end of
+     * the file are indexed directly; writes in the middle mark the tail stale so it
+     * is rescanned on the next lookup.
+     */
+    synchronized void onWrite(long position, ByteBuffer written, long newLength) {
+        long end = position + written.remaining();
+        if (position > length || isStale()) {
+            markDirty(Math.min(position, length));
+            length = newLength;
+            return;
+        }
+        dropFrom(position);
+        for (int i = written.position(); i < written.limit(); i++) {
+            if (written.get(i) == '\n') {
+                addLineStart(position + (i - written.position()) + 1);
+            }
+        }
+        if (end < newLength) {
+            markDirty(end);
+        }
+        length = newLength;
+    }
+
+    synchronized void onTruncate(long newLength) {
+        if (newLength >= length) {
+            return;
+        }
+        dropFrom(newLength);
+        length = newLength;
+        if (dirtyFrom >= newLength) {
+            dirtyFrom = -1;
+        }
+    }
+
+    /**
+     * Rescans the stale tail of the file, starting at the line containing the
+     * first modified byte.
+     */
+    synchronized void refresh(SeekableByteChannel channel) throws IOException {
+        if (!isStale()) {
+            return;
+        }
+        long from = lineStarts[getLine(Math.min(dirtyFrom, length))];
+        rescan(channel, from);
+    }
+
+    private void rescan(SeekableByteChannel channel, long from) throws IOException {
+        dropFrom(from);
+        channel.position(from);
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long offset = from;
+        int read;
+        while ((read = channel.read(buffer)) != -1) {
+            buffer.flip();
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    addLineStart(offset + i + 1);
+                }
+            }
+            offset += read;
+            buffer.clear();
+        }
+        length = offset;
+        dirtyFrom = -1;
+    }
+
+    // Removes line starts after the given offset; the line containing it stays
+    private void dropFrom(long offset) {
+        while (lineCount > 1 && lineStarts[lineCount - 1] > offset) {
+            lineCount--;
+        }
+    }
+
+    private void markDirty(long offset) {
+        dirtyFrom = (dirtyFrom < 0) ? offset : Math.min(dirtyFrom, offset);
+    }
+
+    private void addLineStart(long offset) {
+        if (lineCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+        }
+        lineStarts[lineCount++] = offset;
+    }
+}
@@ -0,0 +1,200 @@
+package org.ballerinalang.lsp.filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * Warms the provider's caches for a Ballerina package as soon as its
+ * {@code Ballerina.toml} is first accessed, so the compiler's sequential reads of
+ * the manifest, module sources and dependencies are served from memory.
+ *
+ * Files under the base directory go through {@link WebBalaFileSystemProvider#warm}
+ * (the content store when enabled, otherwise the OS page cache). Dependencies are
+ * looked up in the bala repository, if one is configured, using the packages
+ * pinned in {@code Dependencies.toml}.
+ */
+public class ProjectPrefetcher {
+    private static final String MANIFEST = "Ballerina.toml";
+    private static final String DEPENDENCIES = "Dependencies.toml";
+
+    private final WebBalaFileSystemProvider provider;
+    private final Path balaRepository;
+    // Prefetches by package root, kept so a package is only prefetched once
+    private final Map<String, Future<?>> started = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "web-bala-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    ProjectPrefetcher(WebBalaFileSystemProvider provider, Path balaRepository) {
+        this.provider = provider;
+        this.balaRepository = balaRepository;
+    }
+
+    /**
+     * Called by the provider for every path it serves; starts a prefetch the first
+     * time a package manifest is seen.
+     */
+    void onAccess(Path realPath) {
+        Path fileName = realPath.getFileName();
+        if (fileName == null || !MANIFEST.equals(fileName.toString())) {
+            return;
+        }
+        Path root = realPath.getParent();
+        if (root != null) {
+            started.computeIfAbsent(root.toString(), key -> executor.submit(() -> {
+                prefetch(root);
+                return null;
+            }));
+        }
+    }
+
+    /**
+     * Waits for the prefetches started so far to finish, throwing the failure of the
+     * first one that failed.
+     */
+    void awaitPrefetches(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Future<?> prefetch : started.values()) {
+            prefetch.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void close() {
+        executor.shutdownNow();
+    }
+
+    private void prefetch(Path root) throws IOException {
+        Path manifest = root.resolve(MANIFEST);
+        if (!Files.isRegularFile(manifest)) {
+            // Probe of a package that does not exist (yet); allow a later attempt
+            started.remove(root.toString());
+            return;
+        }
+        ByteBuffer scratch = ByteBuffer.allocateDirect(64 * 1024);
+        try {
+            // Same order as the compiler: manifest, default module, other modules, dependencies
+            List<Path> files = new ArrayList<>();
+            files.add(manifest);
+            files.add(root.resolve(DEPENDENCIES));
+            files.addAll(sources(root));
+            Path modules = root.resolve("modules");
+            if (Files.isDirectory(modules)) {
+                for (Path module : sorted(modules, Files::isDirectory)) {
+                    files.addAll(sources(module));
+                }
+            }
+            files.addAll(localDependencies(root, manifest));
+            for (Path file : files) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                provider.warm(file, scratch);
+            }
+            for (Path bala : balaDependencies(root.resolve(DEPENDENCIES))) {
+                try (Stream<Path> paths = Files.walk(bala)) {
+                    for (Path file : (Iterable<Path>) paths.filter(p -> p.toString().endsWith(".bal"))::iterator) {
+                        provider.warm(file, scratch);
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Prefetching is best effort; the compiler reads whatever was not warmed.
+            // The failure is also kept in the prefetch's future.
+            System.out.println("Prefetch of " + root + " stopped: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    private static List<Path> sources(Path dir) throws IOException {
+        return sorted(dir, p -> p.toString().endsWith(".bal") && Files.isRegularFile(p));
+    }
+
+    private static List<Path> sorted(Path dir, DirectoryStream.Filter<Path> filter) throws IOException {
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, filter)) {
+            stream.forEach(entries::add);
+        }
+        entries.sort(null);
+        return entries;
+    }
+
+    // "path" entries of [[dependency]] and [[platform.<target>.dependency]] tables in Ballerina.toml
+    private static List<Path> localDependencies(Path root, Path manifest) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        String table = "";
+        for (String line : Files.readAllLines(manifest)) {
+            line = line.trim();
+            if (line.startsWith("[")) {
+                table = line;
+            } else if (table.contains("dependency") && keyOf(line).equals("path")) {
+                Path path = root.resolve(valueOf(line)).normalize();
+                if (path.startsWith(root) && Files.isRegularFile(path)) {
+                    paths.add(path);
+                }
+            }
+        }
+        return paths;
+    }
+
+    // Directories of the [[package]] entries of Dependencies.toml in the bala repository
+    private List<Path> balaDependencies(Path dependencies) throws IOException {
+        List<Path> dirs = new ArrayList<>();
+        if (balaRepository == null || !Files.isRegularFile(dependencies)) {
+            return dirs;
+        }
+        String org = null;
+        String name = null;
+        String version = null;
+        List<String> lines = new ArrayList<>(Files.readAllLines(dependencies));
+        lines.add("[[package]]");
+        for (String line : lines) {
+            line = line.trim();
+            if (line.startsWith("[")) {
+                if (org != null && name != null && version != null) {
+                    Path dir = balaRepository.resolve(org).resolve(name).resolve(version);
+                    if (Files.isDirectory(dir)) {
+                        dirs.add(dir);
+                    }
+                }
+                org = name = version = null;
+            } else if (keyOf(line).equals("org")) {
+                org = valueOf(line);
+            } else if (keyOf(line).equals("name")) {
+                name = valueOf(line);
+            } else if (keyOf(line).equals("version")) {
+                version = valueOf(line);
+            }
+        }
+        return dirs;
+    }
+
+    private static String keyOf(String line) {
+        int eq = line.indexOf('=');
+        return eq > 0 ? line.substring(0, eq).trim() : "";
+    }
+
+    private static String valueOf(String line) {
+        String value = line.substring(line.indexOf('=') + 1).trim();
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,68 @@
+package org.ballerinalang.lsp.filesystem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Fixed set of read/write locks shared by paths through hashing, so operations on
+ * the same path are ordered without one global lock serializing all file I/O.
+ * Readers of a stripe never block each other.
+ *
+ * Locks are held for a single provider operation only, never across calls, and
+ * multiple stripes are always taken in ascending order, so they cannot deadlock.
+ */
+public class StripedLocks {
+    private final ReadWriteLock[] stripes;
+
+    public StripedLocks(int stripeCount) {
+        if (stripeCount <= 0 || Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two: " + stripeCount);
+        }
+        stripes = new ReadWriteLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    public Lock readLock(String key) {
+        return stripes[stripeOf(key)].readLock();
+    }
+
+    public Lock writeLock(String key) {
+        return stripes[stripeOf(key)].writeLock();
+    }
+
+    /**
+     * Acquires the write locks of all given keys in stripe order and returns them
+     * for {@link #unlockAll(List)}.
+     */
+    public List<Lock> lockAllForWrite(String... keys) {
+        boolean[] needed = new boolean[stripes.length];
+        for (String key : keys) {
+            needed[stripeOf(key)] = true;
+        }
+        List<Lock> held = new ArrayList<>();
+        for (int i = 0; i < stripes.length; i++) {
+            if (needed[i]) {
+                Lock lock = stripes[i].writeLock();
+                lock.lock();
+                held.add(lock);
+            }
+        }
+        return held;
+    }
+
+    public void unlockAll(List<Lock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+    }
+
+    private int stripeOf(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (stripes.length - 1);
+    }
+}
@@ -0,0 +1,112 @@
+package org.ballerinalang.lsp.filesystem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Channel handed out by {@link WebBalaFileSystemProvider}. Read channels forward to
+ * the file as it was when opened. Truncating write channels work on a private staged
+ * copy next to the file, which the provider renames over the file on {@link #close()},
+ * so readers only ever see complete content. Other write channels write through to
+ * the file under the path's write lock.
+ */
+public class WebBalaByteChannel implements SeekableByteChannel {
+    private final SeekableByteChannel delegate;
+    private final WebBalaFileSystemProvider provider;
+    private final String key;
+    // Staged copy and its line index for truncating writes, null for channels on the file itself
+    private final Path stagedFile;
+    private final LineIndex stagedIndex;
+    private boolean committed;
+
+    WebBalaByteChannel(SeekableByteChannel delegate, WebBalaFileSystemProvider provider, String key) {
+        this(delegate, provider, key, null, null);
+    }
+
+    WebBalaByteChannel(SeekableByteChannel delegate, WebBalaFileSystemProvider provider, String key,
+            Path stagedFile, LineIndex stagedIndex) {
+        this.delegate = delegate;
+        this.provider = provider;
+        this.key = key;
+        this.stagedFile = stagedFile;
+        this.stagedIndex = stagedIndex;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        long start = System.nanoTime();
+        long traced = FileAccessTrace.FAILED;
+        try {
+            int count = delegate.read(dst);
+            // End of stream is a successful read of nothing
+            traced = Math.max(count, 0);
+            return count;
+        } finally {
+            provider.trace(FileAccessTrace.Op.READ, key, traced, start);
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        long start = System.nanoTime();
+        int count = -1;
+        try {
+            if (stagedFile == null) {
+                count = provider.writeInPlace(key, delegate, src);
+                return count;
+            }
+            ByteBuffer written = src.duplicate();
+            count = delegate.write(src);
+            written.limit(written.position() + count);
+            stagedIndex.onWrite(delegate.position() - count, written, delegate.size());
+            return count;
+        } finally {
+            provider.trace(FileAccessTrace.Op.WRITE, key, count, start);
+        }
+    }
+
+    @Override
+    public long position() throws IOException {
+        return delegate.position();
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        delegate.position(newPosition);
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return delegate.size();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) throws IOException {
+        if (stagedFile == null) {
+            provider.truncateInPlace(key, delegate, size);
+            return this;
+        }
+        delegate.truncate(size);
+        stagedIndex.onTruncate(delegate.size());
+        return this;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return delegate.isOpen();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        long start = System.nanoTime();
+        delegate.close();
+        if (stagedFile != null && !committed) {
+            committed = true;
+            provider.commit(key, stagedFile, stagedIndex);
+        }
+        provider.trace(FileAccessTrace.Op.CLOSE, key, 0, start);
+    }
+}
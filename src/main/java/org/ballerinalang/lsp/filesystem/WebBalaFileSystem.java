@@ -11,6 +11,9 @@ public class WebBalaFileSystem extends FileSystem {
     private final WebBalaFileSystemProvider provider;
     private final boolean readOnly = false;
     private boolean open = true;
+    // Content store and prefetcher created for this file system by the provider's newFileSystem, if any
+    private ContentStore contentStore;
+    private ProjectPrefetcher prefetcher;
 
     public WebBalaFileSystem(WebBalaFileSystemProvider provider) {
         this.provider = provider;
@@ -22,8 +25,12 @@ public class WebBalaFileSystem extends FileSystem {
     }
 
     @Override
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
+        if (!open) {
+            return;
+        }
         open = false;
+        provider.close(this);
     }
 
     @Override
@@ -83,4 +90,30 @@ public class WebBalaFileSystem extends FileSystem {
         return Collections.singleton("basic");
     }
 
+    /**
+     * Returns the line-start index of a file in this file system, for mapping line
+     * and byte-column positions to byte offsets. The index works in bytes: mapping an
+     * LSP {@code Position.character}, which counts UTF-16 code units, to a byte
+     * column (e.g. by decoding the line) is the caller's job.
+     */
+    public LineIndex getLineIndex(Path path) throws IOException {
+        return provider.getLineIndex(path);
+    }
+
+    ContentStore getContentStore() {
+        return contentStore;
+    }
+
+    void setContentStore(ContentStore contentStore) {
+        this.contentStore = contentStore;
+    }
+
+    ProjectPrefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
+    void setPrefetcher(ProjectPrefetcher prefetcher) {
+        this.prefetcher = prefetcher;
+    }
+
 }
\ No newline at end of file
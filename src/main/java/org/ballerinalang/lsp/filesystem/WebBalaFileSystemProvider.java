@@ -3,20 +3,42 @@ package org.ballerinalang.lsp.filesystem;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.DirectoryStream.Filter;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileAttribute;
 import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.nio.file.spi.FileSystemProvider;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
 
 public class WebBalaFileSystemProvider extends FileSystemProvider {
-    private final Map<String, WebBalaFileSystem> fileSystems = new HashMap<>();
+    private final Map<String, WebBalaFileSystem> fileSystems = new ConcurrentHashMap<>();
+    // Per-path read/write locks keyed by real path, which maps one-to-one to the normalized virtual path
+    private final StripedLocks locks = new StripedLocks(64);
+    // Line-start indexes keyed by real path, built lazily on first lookup
+    private final Map<String, LineIndex> lineIndexes = new ConcurrentHashMap<>();
+    // Line indexes loaded from the index snapshot, validated against the file on first use
+    private final Map<String, LineIndex> snapshotEntries = new ConcurrentHashMap<>();
+    private Path snapshotFile;
+    private volatile FileAccessTrace trace;
+    // In-memory content for read-only channels, enabled with the "contentCache" environment entry
+    private volatile ContentStore contentStore;
+    // Warms caches for a package when its Ballerina.toml is first accessed; on by default only with "contentCache"
+    private volatile ProjectPrefetcher prefetcher;
     public Path baseDir;
 
     public WebBalaFileSystemProvider() {
@@ -41,6 +63,34 @@ public class WebBalaFileSystemProvider extends FileSystemProvider {
     public FileSystem newFileSystem(URI uri, Map<String, ?> env) throws IOException {
         WebBalaFileSystem fs = new WebBalaFileSystem(this);
         fileSystems.put(uri.getScheme(), fs);
+        Object snapshot = env.get("snapshot");
+        if (snapshot != null) {
+            loadSnapshot(snapshot instanceof Path ? (Path) snapshot : Paths.get(snapshot.toString()));
+        }
+        boolean contentCache = Boolean.parseBoolean(String.valueOf(env.get("contentCache")));
+        if (contentCache) {
+            Object coldAfter = env.get("contentCacheColdAfterMillis");
+            long coldAfterMillis = coldAfter != null ? Long.parseLong(coldAfter.toString()) : 5 * 60 * 1000;
+            boolean offHeap = Boolean.parseBoolean(String.valueOf(env.get("contentCacheOffHeap")));
+            // The store serves the provider from now on and is closed with this file system
+            ContentStore store = new ContentStore(coldAfterMillis, offHeap);
+            fs.setContentStore(store);
+            synchronized (this) {
+                contentStore = store;
+            }
+        }
+        // Without the content cache a prefetch only warms the OS page cache, so it has to be asked for
+        Object prefetch = env.get("prefetch");
+        if (prefetch != null ? Boolean.parseBoolean(prefetch.toString()) : contentCache) {
+            Object balaRepository = env.get("balaRepository");
+            // Like the content store, the prefetcher is closed with this file system
+            ProjectPrefetcher created = new ProjectPrefetcher(this, balaRepository == null ? null
+                    : balaRepository instanceof Path ? (Path) balaRepository : Paths.get(balaRepository.toString()));
+            fs.setPrefetcher(created);
+            synchronized (this) {
+                prefetcher = created;
+            }
+        }
         System.out.println("New file system created for scheme: " + uri.getScheme());
         System.out.println("registered file system: " + fileSystems);
         return fs;
@@ -56,27 +106,41 @@ public class WebBalaFileSystemProvider extends FileSystemProvider {
         if (!realPath.startsWith(baseDir)) {
             throw new SecurityException("Attempt to access path outside base directory");
         }
-        if (!Files.exists(realPath)) {
-            throw new NoSuchFileException(realPath.toString());
-        }
-        for (AccessMode mode : modes) {
-            switch (mode) {
-                case READ:
-                    if (!Files.isReadable(realPath)) {
-                        throw new AccessDeniedException("Read access denied: " + realPath);
-                    }
-                    break;
-                case WRITE:
-                    if (!Files.isWritable(realPath)) {
-                        throw new AccessDeniedException("Write access denied: " + realPath);
-                    }
-                    break;
-                case EXECUTE:
-                    if (!Files.isExecutable(realPath)) {
-                        throw new AccessDeniedException("Execute access denied: " + realPath);
-                    }
-                    break;
+        notifyPrefetcher(realPath);
+        long start = System.nanoTime();
+        long traced = FileAccessTrace.FAILED;
+        Lock lock = locks.readLock(realPath.toString());
+        lock.lock();
+        try {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(realPath, BasicFileAttributes.class);
+            } catch (IOException e) {
+                throw new NoSuchFileException(realPath.toString());
             }
+            for (AccessMode mode : modes) {
+                switch (mode) {
+                    case READ:
+                        if (!Files.isReadable(realPath)) {
+                            throw new AccessDeniedException("Read access denied: " + realPath);
+                        }
+                        break;
+                    case WRITE:
+                        if (!Files.isWritable(realPath)) {
+                            throw new AccessDeniedException("Write access denied: " + realPath);
+                        }
+                        break;
+                    case EXECUTE:
+                        if (!Files.isExecutable(realPath)) {
+                            throw new AccessDeniedException("Execute access denied: " + realPath);
+                        }
+                        break;
+                }
+            }
+            traced = attrs.isDirectory() ? FileAccessTrace.DIRECTORY : 0;
+        } finally {
+            lock.unlock();
+            trace(FileAccessTrace.Op.CHECK_ACCESS, realPath.toString(), traced, start);
         }
     }
 
@@ -102,8 +166,23 @@ public class WebBalaFileSystemProvider extends FileSystemProvider {
             throw new SecurityException("Attempt to create directory outside base directory");
         }
 
-        // Create the directory
-        Files.createDirectories(realPath, attrs);
+        // Create the directory, excluding concurrent changes to every directory created
+        // and to the existing directory they are created in
+        long start = System.nanoTime();
+        List<String> keys = new ArrayList<>();
+        Path missing = realPath;
+        while (missing != null && missing.startsWith(baseDir) && !Files.exists(missing)) {
+            keys.add(missing.toString());
+            missing = missing.getParent();
+        }
+        keys.add(missing != null ? missing.toString() : realPath.toString());
+        List<Lock> held = locks.lockAllForWrite(keys.toArray(new String[0]));
+        try {
+            Files.createDirectories(realPath, attrs);
+        } finally {
+            locks.unlockAll(held);
+            trace(FileAccessTrace.Op.CREATE_DIRECTORY, realPath.toString(), FileAccessTrace.DIRECTORY, start);
+        }
     }
 
     @Override
@@ -116,7 +195,15 @@ public class WebBalaFileSystemProvider extends FileSystemProvider {
         if (!realPath.startsWith(baseDir)) {
             throw new SecurityException("Attempt to delete outside base directory");
         }
-        Files.delete(realPath);
+        long start = System.nanoTime();
+        List<Lock> held = locks.lockAllForWrite(realPath.toString(), parentKey(realPath));
+        try {
+            Files.delete(realPath);
+            invalidate(realPath.toString());
+        } finally {
+            locks.unlockAll(held);
+            trace(FileAccessTrace.Op.DELETE, realPath.toString(), 0, start);
+        }
     }
 
     @Override
@@ -198,7 +285,39 @@ public class WebBalaFileSystemProvider extends FileSystemProvider {
         if (!realPath.startsWith(baseDir)) {
             throw new SecurityException("Attempt to access path outside base directory");
         }
-        return Files.newByteChannel(realPath, options, attrs);
+        String key = realPath.toString();
+        notifyPrefetcher(realPath);
+        boolean write = options.contains(StandardOpenOption.WRITE) || options.contains(StandardOpenOption.APPEND);
+        // Opening for write may create, stage or truncate the file, so it excludes other changes to the path
+        long start = System.nanoTime();
+        long size = FileAccessTrace.FAILED;
+        Lock lock = write ? locks.writeLock(key) : locks.readLock(key);
+        lock.lock();
+        try {
+            ContentStore store = contentStore;
+            if (store != null && !write && (options.isEmpty()
+                    || (options.size() == 1 && options.contains(StandardOpenOption.READ)))) {
+                BasicFileAttributes fileAttrs = Files.readAttributes(realPath, BasicFileAttributes.class);
+                ByteBuffer content = fileAttrs.isRegularFile()
+                        ? store.get(key, realPath, fileAttrs.size(), fileAttrs.lastModifiedTime().toMillis())
+                        : null;
+                if (content != null) {
+                    size = content.remaining();
+                    return new WebBalaByteChannel(new BufferByteChannel(content), this, key);
+                }
+            }
+            if (write) {
+                WebBalaByteChannel channel = openForWrite(realPath, options, attrs);
+                size = channel.size();
+                return channel;
+            }
+            SeekableByteChannel channel = Files.newByteChannel(realPath, options, attrs);
+            size = channel.size();
+            return new WebBalaByteChannel(channel, this, key);
+        } finally {
+            lock.unlock();
+            trace(write ? FileAccessTrace.Op.OPEN_WRITE : FileAccessTrace.Op.OPEN_READ, key, size, start);
+        }
     }
 
     @Override
@@ -218,7 +337,20 @@ public class WebBalaFileSystemProvider extends FileSystemProvider {
         if (!realPath.startsWith(baseDir)) {
             throw new SecurityException("Attempt to access path outside base directory");
         }
-        return Files.readAttributes(realPath, type, options);
+        notifyPrefetcher(realPath);
+        long start = System.nanoTime();
+        A attributes = null;
+        Lock lock = locks.readLock(realPath.toString());
+        lock.lock();
+        try {
+            attributes = Files.readAttributes(realPath, type, options);
+            return attributes;
+        } finally {
+            lock.unlock();
+            long traced = attributes == null ? FileAccessTrace.FAILED
+                    : attributes.isDirectory() ? FileAccessTrace.DIRECTORY : attributes.size();
+            trace(FileAccessTrace.Op.READ_ATTRIBUTES, realPath.toString(), traced, start);
+        }
     }
 
     @Override
@@ -233,5 +365,438 @@ public class WebBalaFileSystemProvider extends FileSystemProvider {
         throw new UnsupportedOperationException("Unimplemented method 'setAttribute'");
     }
 
+    /**
+     * Returns the line-start index of a file, building it on first use. Writes made
+     * through this provider's channels keep it up to date, and it is rebuilt when the
+     * file's size or modification time changed otherwise, so callers should look the
+     * index up again per request rather than holding on to it.
+     */
+    public LineIndex getLineIndex(Path path) throws IOException {
+        Path realPath = toRealPath(path);
+        Lock lock = locks.readLock(realPath.toString());
+        lock.lock();
+        try {
+            return lineIndexOf(realPath);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private LineIndex lineIndexOf(Path realPath) throws IOException {
+        String key = realPath.toString();
+        BasicFileAttributes attrs = Files.readAttributes(realPath, BasicFileAttributes.class);
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        LineIndex index = lineIndexes.get(key);
+        if (index != null && !index.matches(attrs.size(), lastModified)) {
+            // Changed outside the provider
+            lineIndexes.remove(key, index);
+            index = null;
+        }
+        if (index != null && !index.isStale()) {
+            return index;
+        }
+        if (index == null) {
+            LineIndex restored = takeSnapshotEntry(key, attrs.size(), lastModified);
+            if (restored != null) {
+                return restored;
+            }
+        }
+        try (SeekableByteChannel channel = Files.newByteChannel(realPath, StandardOpenOption.READ)) {
+            if (index != null) {
+                index.refresh(channel);
+                return index;
+            }
+            LineIndex built = LineIndex.build(channel, lastModified);
+            lineIndexes.put(key, built);
+            return built;
+        }
+    }
+
+    /**
+     * Sends a file's whole content to the given channel. See
+     * {@link #transferTo(Path, long, long, WritableByteChannel)}.
+     */
+    public long transferTo(Path path, WritableByteChannel target) throws IOException {
+        return transferTo(path, 0, Long.MAX_VALUE, target);
+    }
+
+    /**
+     * Sends up to {@code count} bytes of a file starting at {@code position} to the
+     * given channel using {@link FileChannel#transferTo}, so the content goes from
+     * the page cache to the target (e.g. a socket) without being copied into the
+     * Java heap. The transfer reads the file as it was when opened: writers replace
+     * files by rename, so they neither wait for nor change a transfer in progress.
+     *
+     * @return the number of bytes transferred, 0 if {@code position} is past the end
+     */
+    public long transferTo(Path path, long position, long count, WritableByteChannel target) throws IOException {
+        if (position < 0 || count < 0) {
+            throw new IllegalArgumentException("Negative position or count: " + position + ", " + count);
+        }
+        Path realPath = toRealPath(path);
+        // Lock only to open; the target may be a slow network client
+        FileChannel channel;
+        Lock lock = locks.readLock(realPath.toString());
+        lock.lock();
+        try {
+            channel = FileChannel.open(realPath, StandardOpenOption.READ);
+        } finally {
+            lock.unlock();
+        }
+        try (channel) {
+            long end = Math.min(channel.size(), position + Math.min(count, Long.MAX_VALUE - position));
+            long transferred = 0;
+            while (position + transferred < end) {
+                long n = channel.transferTo(position + transferred, end - position - transferred, target);
+                if (n <= 0) {
+                    // Non-blocking targets that are full accept nothing; report what was sent
+                    break;
+                }
+                transferred += n;
+            }
+            return transferred;
+        }
+    }
+
+    /**
+     * Writes the line indexes to the snapshot file configured with the
+     * {@code snapshot} entry of the {@code newFileSystem} environment. Only indexes
+     * that still match the file on disk are written, including those restored from
+     * the previous snapshot and not looked up since.
+     */
+    public void saveSnapshot() throws IOException {
+        if (snapshotFile == null) {
+            return;
+        }
+        Set<String> keys = new HashSet<>(snapshotEntries.keySet());
+        keys.addAll(lineIndexes.keySet());
+        Map<String, LineIndex> entries = new HashMap<>();
+        for (String key : keys) {
+            Path realPath = Paths.get(key);
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(realPath, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                continue;
+            }
+            LineIndex index = lineIndexes.get(key);
+            if (index == null) {
+                index = snapshotEntries.get(key);
+            }
+            if (index != null && !index.isStale()
+                    && index.matches(attrs.size(), attrs.lastModifiedTime().toMillis())) {
+                entries.put(baseDir.relativize(realPath).toString(), index);
+            }
+        }
+        IndexSnapshot.write(snapshotFile, baseDir, entries);
+    }
+
+    private void loadSnapshot(Path file) {
+        snapshotFile = file;
+        try {
+            for (Map.Entry<String, LineIndex> entry : IndexSnapshot.read(file, baseDir).entrySet()) {
+                snapshotEntries.put(baseDir.resolve(entry.getKey()).normalize().toString(), entry.getValue());
+            }
+        } catch (IOException e) {
+            // A damaged snapshot only costs a cold start
+            System.out.println("Ignoring unreadable index snapshot " + file + ": " + e.getMessage());
+        }
+    }
+
+    // Removes a snapshot entry and returns it if the file has not changed since it was written
+    private LineIndex takeSnapshotEntry(String key, long size, long lastModified) {
+        LineIndex entry = snapshotEntries.remove(key);
+        if (entry == null || !entry.matches(size, lastModified)) {
+            return null;
+        }
+        LineIndex current = lineIndexes.putIfAbsent(key, entry);
+        return current != null ? current : entry;
+    }
+
+    /**
+     * Starts recording the operations served by this provider into the given trace,
+     * or stops recording when {@code trace} is null. Failed operations are recorded
+     * with a size of {@link FileAccessTrace#FAILED}, and checks of directories with
+     * {@link FileAccessTrace#DIRECTORY}.
+     */
+    public void setTrace(FileAccessTrace trace) {
+        this.trace = trace;
+    }
+
+    void trace(FileAccessTrace.Op op, String key, long size, long startNanos) {
+        FileAccessTrace current = trace;
+        if (current != null) {
+            current.record(op, baseDir.relativize(Paths.get(key)).toString(), size, startNanos);
+        }
+    }
+
+    private static String parentKey(Path realPath) {
+        Path parent = realPath.getParent();
+        return parent != null ? parent.toString() : realPath.toString();
+    }
+
+    /**
+     * Returns the in-memory content store, or null when the content cache is not enabled.
+     */
+    public ContentStore getContentStore() {
+        return contentStore;
+    }
+
+    /**
+     * Loads a file into the content store, or through the OS page cache when the
+     * store is disabled or the file is outside the base directory. Missing files
+     * are skipped.
+     */
+    void warm(Path realPath, ByteBuffer scratch) throws IOException {
+        String key = realPath.toString();
+        Lock lock = locks.readLock(key);
+        lock.lock();
+        try {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(realPath, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                return;
+            }
+            if (!attrs.isRegularFile()) {
+                return;
+            }
+            ContentStore store = contentStore;
+            if (store != null && realPath.startsWith(baseDir)
+                    && store.get(key, realPath, attrs.size(), attrs.lastModifiedTime().toMillis()) != null) {
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(realPath, StandardOpenOption.READ)) {
+                while (channel.read(scratch) != -1) {
+                    scratch.clear();
+                }
+            } finally {
+                scratch.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void notifyPrefetcher(Path realPath) {
+        ProjectPrefetcher current = prefetcher;
+        if (current != null) {
+            current.onAccess(realPath);
+        }
+    }
+
+    /**
+     * Saves the snapshot and releases what {@code newFileSystem} created for the
+     * given file system, leaving the provider to the file systems still open.
+     */
+    void close(WebBalaFileSystem fs) throws IOException {
+        try {
+            saveSnapshot();
+        } finally {
+            // Shut down the background threads even when the snapshot cannot be saved
+            ProjectPrefetcher ownPrefetcher = fs.getPrefetcher();
+            if (ownPrefetcher != null) {
+                synchronized (this) {
+                    if (prefetcher == ownPrefetcher) {
+                        prefetcher = null;
+                    }
+                }
+                ownPrefetcher.close();
+            }
+            ContentStore store = fs.getContentStore();
+            if (store != null) {
+                synchronized (this) {
+                    // A later file system may have installed its own store since
+                    if (contentStore == store) {
+                        contentStore = null;
+                    }
+                }
+                store.close();
+            }
+        }
+    }
+
+    private void invalidate(String key) {
+        invalidateContent(key);
+        lineIndexes.remove(key);
+        snapshotEntries.remove(key);
+    }
+
+    private void invalidateContent(String key) {
+        ContentStore store = contentStore;
+        if (store != null) {
+            store.invalidate(key);
+        }
+    }
+
+    /**
+     * Opens a write channel. Truncating writes, including new files, go to a staged
+     * copy next to the file that {@link #commit} renames over it when the channel is
+     * closed, so readers never open a half-written file; of concurrent truncating
+     * writers the last to close wins. APPEND and other in-place writes, DELETE_ON_CLOSE
+     * and linked files are written through to the file by {@link #writeInPlace}.
+     */
+    private WebBalaByteChannel openForWrite(Path realPath, Set<? extends OpenOption> options,
+            FileAttribute<?>... attrs) throws IOException {
+        String key = realPath.toString();
+        Set<OpenOption> fileOptions = new HashSet<>(options);
+        boolean created = false;
+        if (options.contains(StandardOpenOption.CREATE_NEW) || options.contains(StandardOpenOption.CREATE)) {
+            // Create the file on open, as the OS would, so CREATE_NEW stays exclusive
+            try {
+                Files.createFile(realPath, attrs);
+                created = true;
+                fileOptions.remove(StandardOpenOption.CREATE_NEW);
+            } catch (FileAlreadyExistsException e) {
+                if (options.contains(StandardOpenOption.CREATE_NEW)) {
+                    throw e;
+                }
+            }
+        }
+        boolean truncate = created
+                || (options.contains(StandardOpenOption.TRUNCATE_EXISTING) && !options.contains(StandardOpenOption.APPEND));
+        if (!truncate || options.contains(StandardOpenOption.DELETE_ON_CLOSE) || (!created && isLinked(realPath))) {
+            return new WebBalaByteChannel(Files.newByteChannel(realPath, fileOptions), this, key);
+        }
+
+        BasicFileAttributes fileAttrs = Files.readAttributes(realPath, BasicFileAttributes.class);
+        if (fileAttrs.isDirectory()) {
+            throw new FileSystemException(key, null, "Is a directory");
+        }
+        Path staged = realPath.resolveSibling(
+                "." + realPath.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        Files.createFile(staged);
+        SeekableByteChannel channel;
+        try {
+            PosixFileAttributeView view = Files.getFileAttributeView(realPath, PosixFileAttributeView.class);
+            if (view != null) {
+                Files.setPosixFilePermissions(staged, view.readAttributes().permissions());
+            }
+            fileOptions.remove(StandardOpenOption.CREATE_NEW);
+            fileOptions.remove(StandardOpenOption.TRUNCATE_EXISTING);
+            channel = Files.newByteChannel(staged, fileOptions);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(staged);
+            throw e;
+        }
+        // The staged line index follows the copy and replaces the file's index on commit
+        return new WebBalaByteChannel(channel, this, key, staged, new LineIndex());
+    }
+
+    // Renaming over a symbolic or hard link would replace it with a plain file
+    private static boolean isLinked(Path realPath) throws IOException {
+        if (Files.isSymbolicLink(realPath)) {
+            return true;
+        }
+        try {
+            Object links = Files.getAttribute(realPath, "unix:nlink");
+            return links instanceof Integer && (Integer) links > 1;
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Replaces a file with the staged copy written through a closed channel and
+     * brings the per-file caches in line with the new content. A file deleted while
+     * the channel was open stays deleted.
+     */
+    void commit(String key, Path stagedFile, LineIndex stagedIndex) throws IOException {
+        Path realPath = Paths.get(key);
+        Lock lock = locks.writeLock(key);
+        lock.lock();
+        try {
+            if (!Files.exists(realPath, LinkOption.NOFOLLOW_LINKS)) {
+                Files.delete(stagedFile);
+                return;
+            }
+            // The rename keeps the staged copy's modification time
+            stagedIndex.setLastModified(Files.getLastModifiedTime(stagedFile).toMillis());
+            Files.move(stagedFile, realPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            invalidateContent(key);
+                snapshotEntries.remove(key);
+            lineIndexes.put(key, stagedIndex);
+        } catch (IOException e) {
+            Files.deleteIfExists(stagedFile);
+            throw e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes through a channel opened on the file itself and updates the file's
+     * caches, under the path's write lock so lookups see both or neither.
+     */
+    int writeInPlace(String key, SeekableByteChannel channel, ByteBuffer src) throws IOException {
+        Path realPath = Paths.get(key);
+        Lock lock = locks.writeLock(key);
+        lock.lock();
+        try {
+            LineIndex index = lineIndexes.get(key);
+            if (index != null && !index.matches(channel.size(), lastModifiedOf(realPath))) {
+                // Changed outside the provider since it was indexed
+                lineIndexes.remove(key);
+                index = null;
+            }
+            ByteBuffer written = src.duplicate();
+            int count = channel.write(src);
+            written.limit(written.position() + count);
+            invalidateContent(key);
+                snapshotEntries.remove(key);
+            if (index != null) {
+                // Position after the write also covers APPEND, where the write moves to the end first
+                index.onWrite(channel.position() - count, written, channel.size());
+                index.setLastModified(lastModifiedOf(realPath));
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void truncateInPlace(String key, SeekableByteChannel channel, long size) throws IOException {
+        Path realPath = Paths.get(key);
+        Lock lock = locks.writeLock(key);
+        lock.lock();
+        try {
+            LineIndex index = lineIndexes.get(key);
+            if (index != null && !index.matches(channel.size(), lastModifiedOf(realPath))) {
+                lineIndexes.remove(key);
+                index = null;
+            }
+            channel.truncate(size);
+            invalidateContent(key);
+                snapshotEntries.remove(key);
+            if (index != null) {
+                index.onTruncate(channel.size());
+                index.setLastModified(lastModifiedOf(realPath));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Modification time in milliseconds, or -1 once the file is gone (e.g. DELETE_ON_CLOSE)
+    private static long lastModifiedOf(Path realPath) throws IOException {
+        try {
+            return Files.getLastModifiedTime(realPath).toMillis();
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+    }
+
+    private Path toRealPath(Path path) {
+        String virtualPathStr = path.toString();
+        if (virtualPathStr.startsWith("/")) {
+            virtualPathStr = virtualPathStr.substring(1);
+        }
+        Path realPath = baseDir.resolve(virtualPathStr).normalize();
+        if (!realPath.startsWith(baseDir)) {
+            throw new SecurityException("Attempt to access path outside base directory");
+        }
+        return realPath;
+    }
+
     // Implement other required methods
 }
\ No newline at end of file
@@ -1,9 +1,27 @@
 package org.ballerinalang.lsp.filesystem;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 import java.nio.file.spi.FileSystemProvider;
 
 public class FileSystemTest {
@@ -18,6 +36,14 @@ public class FileSystemTest {
         FileSystemProvider provider = fs.provider();
 
         testWebBalaPathOperations(provider);
+        testLineIndex();
+        testIndexSnapshot();
+        testConcurrentReadersAndWriters();
+        testWriteOptions();
+        testTransferTo();
+        testFileAccessTrace();
+        testContentStore();
+        testProjectPrefetch();
 
         System.out.println("All tests passed!");
     }
@@ -191,4 +217,337 @@ public class FileSystemTest {
         System.out.println("endsWith('sample.txt'): " + ends);
         System.out.println("toUri: " + fileUri);
     }
-}
\ No newline at end of file
+
+    private static void testLineIndex() throws Exception {
+        // 1. Use a provider rooted in a temp directory
+        WebBalaFileSystemProvider provider = new WebBalaFileSystemProvider(Files.createTempDirectory("web-bala"));
+        WebBalaFileSystem fs = new WebBalaFileSystem(provider);
+        Path path = fs.getPath("/main.bal");
+        Files.writeString(path, "import ballerina/io;\n\npublic function main() {\n}\n");
+
+        // 2. Map positions through the index
+        LineIndex index = fs.getLineIndex(path);
+        check(index.getLineCount() == 5, "lineCount");
+        check(index.getOffset(2, 7) == 29, "offset of (2, 7)");
+        check(index.getLine(29) == 2 && index.getByteColumn(29) == 7, "position of offset 29");
+
+        // 3. Append and overwrite through the provider's channels
+        Files.writeString(path, "// end\n", StandardOpenOption.APPEND);
+        check(fs.getLineIndex(path).getLineCount() == 6, "lineCount after append");
+        try (SeekableByteChannel channel = Files.newByteChannel(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap("import\nballerina/io;".getBytes(StandardCharsets.UTF_8)));
+        }
+        check(fs.getLineIndex(path).getLineCount() == 7, "lineCount after overwrite");
+        check(fs.getLineIndex(path).getLineStart(3) == 22, "line start after overwrite");
+
+        // 4. Truncating write resets the index
+        Files.writeString(path, "x");
+        check(fs.getLineIndex(path).getLineCount() == 1, "lineCount after truncate");
+
+        // 5. Edits made outside the provider are not served from the cached index,
+        // even at the same size, and are not extended by later appends
+        Path realPath = provider.getBaseDir().resolve("main.bal");
+        Files.writeString(path, "a\nb\nc\n");
+        check(fs.getLineIndex(path).getLineCount() == 4, "lineCount before external edit");
+        Files.writeString(realPath, "abc\n\n\n");
+        Files.setLastModifiedTime(realPath, FileTime.fromMillis(Files.getLastModifiedTime(realPath).toMillis() + 1000));
+        check(fs.getLineIndex(path).getLineStart(1) == 4, "line start after same-size external edit");
+        Files.writeString(realPath, "x".repeat(22));
+        Files.writeString(path, "z\n", StandardOpenOption.APPEND);
+        check(Arrays.equals(fs.getLineIndex(path).toLineStarts(), new long[] {0, 24}), "append after external edit");
+        System.out.println("Line index checks passed!");
+    }
+
+    private static void testIndexSnapshot() throws Exception {
+        // 1. Populate the line indexes of a session and close it to write the snapshot
+        Path baseDir = Files.createTempDirectory("web-bala");
+        Path snapshot = baseDir.resolveSibling(baseDir.getFileName() + ".snapshot");
+        Map<String, ?> env = Map.of("snapshot", snapshot);
+        WebBalaFileSystemProvider provider = new WebBalaFileSystemProvider(baseDir);
+        WebBalaFileSystem fs = (WebBalaFileSystem) provider.newFileSystem(URI.create("web-bala:///"), env);
+        Path path = fs.getPath("/main.bal");
+        Files.writeString(path, "public function main() {\n}\n");
+        Files.writeString(fs.getPath("/util.bal"), "function util() {\n}\n");
+        long[] lineStarts = fs.getLineIndex(path).toLineStarts();
+        fs.getLineIndex(fs.getPath("/util.bal"));
+        fs.close();
+
+        // 2. A restarted provider comes back with the same line index
+        WebBalaFileSystemProvider restarted = new WebBalaFileSystemProvider(baseDir);
+        WebBalaFileSystem restartedFs = (WebBalaFileSystem) restarted.newFileSystem(URI.create("web-bala:///"), env);
+        Path restartedPath = restartedFs.getPath("/main.bal");
+        check(Arrays.equals(restartedFs.getLineIndex(restartedPath).toLineStarts(), lineStarts), "restored line index");
+
+        // 3. Entries are dropped once the file changes
+        Files.writeString(baseDir.resolve("main.bal"), "public function main() {}\n");
+        check(restartedFs.getLineIndex(restartedPath).getLineCount() == 2, "line index after change");
+
+        // 4. Restored entries that were never looked up are dropped on save once their file is gone
+        Files.delete(baseDir.resolve("util.bal"));
+        restartedFs.close();
+        check(IndexSnapshot.read(snapshot, baseDir).keySet().equals(Set.of("main.bal")), "pruned snapshot");
+
+        // 5. A corrupt snapshot only costs a cold start
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(snapshot))) {
+            out.writeInt(0x57424958);
+            out.writeInt(2);
+            out.writeUTF(baseDir.toString());
+            out.writeInt(1);
+            out.writeUTF("main.bal");
+            out.writeLong(Files.size(restartedPath));
+            out.writeLong(Files.getLastModifiedTime(restartedPath).toMillis());
+            out.write(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F});
+        }
+        WebBalaFileSystemProvider cold = new WebBalaFileSystemProvider(baseDir);
+        WebBalaFileSystem coldFs = (WebBalaFileSystem) cold.newFileSystem(URI.create("web-bala:///"), env);
+        check(coldFs.getLineIndex(coldFs.getPath("/main.bal")).getLineCount() == 2, "line index after corrupt snapshot");
+        System.out.println("Index snapshot checks passed!");
+    }
+
+    private static void testConcurrentReadersAndWriters() throws Exception {
+        // 1. Writers rewrite a file with one letter each while readers read it whole
+        WebBalaFileSystemProvider provider = new WebBalaFileSystemProvider(Files.createTempDirectory("web-bala"));
+        WebBalaFileSystem fs = new WebBalaFileSystem(provider);
+        Path path = fs.getPath("/mydir/shared.bal");
+        Files.createDirectories(path.getParent());
+        int size = 256 * 1024;
+        Files.writeString(path, "-".repeat(size));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String content = String.valueOf((char) ('A' + t)).repeat(size);
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    Files.writeString(path, content);
+                }
+                return null;
+            }));
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    // 2. A read never observes a truncated or partly rewritten file
+                    String read = Files.readString(path);
+                    check(read.length() == size, "truncated read of " + read.length() + " chars");
+                    for (int j = 1; j < read.length(); j++) {
+                        check(read.charAt(j) == read.charAt(0), "torn read at " + j);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // 3. Staged copies do not outlive their channels
+        try (Stream<Path> files = Files.list(provider.getBaseDir().resolve("mydir"))) {
+            check(files.count() == 1, "leftover staged files");
+        }
+        System.out.println("Concurrency checks passed!");
+    }
+
+    private static void testWriteOptions() throws Exception {
+        // 1. Concurrent appends all land
+        WebBalaFileSystemProvider provider = new WebBalaFileSystemProvider(Files.createTempDirectory("web-bala"));
+        WebBalaFileSystem fs = new WebBalaFileSystem(provider);
+        Path log = fs.getPath("/app.log");
+        Files.writeString(log, "");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 50; i++) {
+                    Files.writeString(log, "x\n", StandardOpenOption.APPEND);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        check(Files.readAllLines(log).size() == 400, "lost appends");
+        check(fs.getLineIndex(log).getLineCount() == 401, "line index after appends");
+
+        // 2. CREATE_NEW is exclusive while the first channel is still open
+        Path created = fs.getPath("/created.bal");
+        try (SeekableByteChannel first = Files.newByteChannel(created, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE)) {
+            first.write(ByteBuffer.wrap("first".getBytes(StandardCharsets.UTF_8)));
+            try {
+                Files.newByteChannel(created, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+                check(false, "second CREATE_NEW succeeded");
+            } catch (FileAlreadyExistsException e) {
+                // Expected
+            }
+        }
+        check(Files.readString(created).equals("first"), "CREATE_NEW content");
+
+        // 3. A file deleted while a channel is open stays deleted
+        try (SeekableByteChannel channel = Files.newByteChannel(created, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap("second".getBytes(StandardCharsets.UTF_8)));
+            Files.delete(created);
+        }
+        check(!Files.exists(created), "deleted file recreated");
+
+        // 4. DELETE_ON_CLOSE works and links stay links
+        Path scratch = fs.getPath("/scratch.tmp");
+        try (SeekableByteChannel channel = Files.newByteChannel(scratch, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+            channel.write(ByteBuffer.wrap("scratch".getBytes(StandardCharsets.UTF_8)));
+        }
+        check(!Files.exists(scratch), "DELETE_ON_CLOSE");
+        Path target = provider.getBaseDir().resolve("target.bal");
+        Files.writeString(target, "old");
+        Files.createSymbolicLink(provider.getBaseDir().resolve("link.bal"), target);
+        Files.writeString(fs.getPath("/link.bal"), "new");
+        check(Files.isSymbolicLink(provider.getBaseDir().resolve("link.bal")), "symbolic link replaced");
+        check(Files.readString(target).equals("new"), "write through symbolic link");
+        System.out.println("Write option checks passed!");
+    }
+
+    private static void testTransferTo() throws Exception {
+        // 1. Create a file in a temp-rooted file system
+        WebBalaFileSystemProvider provider = new WebBalaFileSystemProvider(Files.createTempDirectory("web-bala"));
+        WebBalaFileSystem fs = new WebBalaFileSystem(provider);
+        Path path = fs.getPath("/main.bal");
+        Files.writeString(path, "public function main() {}\n");
+
+        // 2. Stream the whole file and a range of it into a channel
+        ByteArrayOutputStream whole = new ByteArrayOutputStream();
+        check(provider.transferTo(path, Channels.newChannel(whole)) == 26, "whole transfer size");
+        check(whole.toString(StandardCharsets.UTF_8).equals("public function main() {}\n"), "whole transfer");
+        ByteArrayOutputStream range = new ByteArrayOutputStream();
+        check(provider.transferTo(path, 7, 8, Channels.newChannel(range)) == 8, "range transfer size");
+        check(range.toString(StandardCharsets.UTF_8).equals("function"), "range transfer");
+
+        // 3. Ranges past the end are clamped
+        check(provider.transferTo(path, 20, 100, Channels.newChannel(new ByteArrayOutputStream())) == 6,
+                "clamped transfer");
+        check(provider.transferTo(path, 100, 10, Channels.newChannel(new ByteArrayOutputStream())) == 0,
+                "transfer past end");
+        System.out.println("Transfer checks passed!");
+    }
+
+    private static void testFileAccessTrace() throws Exception {
+        // 1. Record a read of an existing file and a probe of a missing one
+        Path baseDir = Files.createTempDirectory("web-bala");
+        WebBalaFileSystemProvider provider = new WebBalaFileSystemProvider(baseDir);
+        WebBalaFileSystem fs = new WebBalaFileSystem(provider);
+        Path path = fs.getPath("/main.bal");
+        Files.writeString(path, "public function main() {}\n");
+        FileAccessTrace trace = new FileAccessTrace();
+        provider.setTrace(trace);
+        Files.readString(path);
+        check(!Files.exists(fs.getPath("/missing.bal")), "missing file");
+        provider.setTrace(null);
+
+        // 2. The trace survives a round trip through its file format
+        Path traceFile = baseDir.resolve("trace.tsv");
+        trace.writeTo(traceFile);
+        List<FileAccessTrace.Event> events = FileAccessTrace.read(traceFile);
+        check(events.size() == trace.getEvents().size(), "event count");
+        check(events.get(0).getOp() == FileAccessTrace.Op.OPEN_READ && events.get(0).getSize() == 26, "open event");
+        FileAccessTrace.Event last = events.get(events.size() - 1);
+        check(last.getPath().equals("missing.bal") && last.getSize() == FileAccessTrace.FAILED,
+                "failed probe event");
+
+        // 3. Probed directories are traced and materialized as directories
+        Files.createDirectories(fs.getPath("/tests"));
+        trace = new FileAccessTrace();
+        provider.setTrace(trace);
+        check(Files.isDirectory(fs.getPath("/tests")), "empty directory");
+        provider.setTrace(null);
+        events = trace.getEvents();
+        check(events.get(0).getSize() == FileAccessTrace.DIRECTORY, "directory probe event");
+        Path sessionDir = baseDir.resolve("session");
+        LoadTestHarness.materialize(sessionDir, events);
+        check(Files.isDirectory(sessionDir.resolve("tests")), "materialized directory");
+        System.out.println("Trace checks passed!");
+    }
+
+    private static void testContentStore() throws Exception {
+        // 1. Enable the content cache with a cold period the background sweep never reaches here
+        WebBalaFileSystemProvider provider = new WebBalaFileSystemProvider(Files.createTempDirectory("web-bala"));
+        Map<String, ?> env = Map.of("contentCache", true, "contentCacheColdAfterMillis", 60_000);
+        WebBalaFileSystem fs = (WebBalaFileSystem) provider.newFileSystem(URI.create("web-bala:///"), env);
+        ContentStore store = provider.getContentStore();
+        Path path = fs.getPath("/main.bal");
+        String content = "public function main() {\n}\n".repeat(100);
+        Files.writeString(path, content);
+
+        // 2. Reads are served from memory and files go cold when idle
+        check(Files.readString(path).equals(content), "hot read");
+        check(store.getHotBytes() == content.length(), "hot bytes");
+        store.sweep(System.currentTimeMillis());
+        check(store.getHotBytes() == content.length(), "hot within cold period");
+        store.sweep(System.currentTimeMillis() + 60_001);
+        check(store.getHotBytes() == 0 && store.getColdBytes() > 0, "compressed when idle");
+        check(store.getColdBytes() < content.length(), "compressed size");
+        check(Files.readString(path).equals(content), "read after inflate");
+
+        // 3. Writes through the provider drop the cached copy
+        Files.writeString(path, "updated");
+        check(Files.readString(path).equals("updated"), "read after write");
+
+        // 4. Only the file system that created the store closes it, and only once
+        new WebBalaFileSystem(provider).close();
+        check(provider.getContentStore() == store, "store closed by another file system");
+        fs.close();
+        fs.close();
+        check(provider.getContentStore() == null, "store outlived its file system");
+        System.out.println("Content store checks passed!");
+    }
+
+    private static void testProjectPrefetch() throws Exception {
+        // 1. Lay out a package with a module and a pinned dependency in a bala repository
+        Path baseDir = Files.createTempDirectory("web-bala");
+        Path balaRepository = Files.createTempDirectory("web-bala-repo");
+        Path bala = balaRepository.resolve("sample/util/1.0.0/any/modules/util");
+        Files.createDirectories(bala);
+        Files.writeString(bala.resolve("util.bal"), "public function util() {}\n");
+        Files.createDirectories(baseDir.resolve("app/modules/db"));
+        Files.writeString(baseDir.resolve("app/Ballerina.toml"), "[package]\norg = \"sample\"\nname = \"app\"\n");
+        Files.writeString(baseDir.resolve("app/Dependencies.toml"),
+                "[[package]]\norg = \"sample\"\nname = \"util\"\nversion = \"1.0.0\"\n");
+        Files.writeString(baseDir.resolve("app/main.bal"), "public function main() {}\n");
+        Files.writeString(baseDir.resolve("app/modules/db/db.bal"), "public function query() {}\n");
+        long projectBytes = 0;
+        for (String file : new String[] {"Ballerina.toml", "Dependencies.toml", "main.bal", "modules/db/db.bal"}) {
+            projectBytes += Files.size(baseDir.resolve("app").resolve(file));
+        }
+
+        // 2. Reading the manifest warms the rest of the package in the background
+        List<Path> warmed = new CopyOnWriteArrayList<>();
+        WebBalaFileSystemProvider provider = new WebBalaFileSystemProvider(baseDir) {
+            @Override
+            void warm(Path realPath, ByteBuffer scratch) throws IOException {
+                warmed.add(realPath);
+                super.warm(realPath, scratch);
+            }
+        };
+        Map<String, ?> env = Map.of("contentCache", true, "balaRepository", balaRepository);
+        WebBalaFileSystem fs = (WebBalaFileSystem) provider.newFileSystem(URI.create("web-bala:///"), env);
+        Files.readString(fs.getPath("/app/Ballerina.toml"));
+        fs.getPrefetcher().awaitPrefetches(10, TimeUnit.SECONDS);
+        check(provider.getContentStore().getHotBytes() == projectBytes, "prefetched package sources");
+
+        // 3. Pinned dependencies are warmed from the bala repository, after the package
+        check(warmed.size() == 5 && warmed.get(4).equals(bala.resolve("util.bal")), "prefetched bala dependency");
+        fs.close();
+
+        // 4. Without the content cache, prefetching is only on when asked for
+        WebBalaFileSystem plain = (WebBalaFileSystem) provider.newFileSystem(URI.create("web-bala:///"), Map.of());
+        check(plain.getPrefetcher() == null, "prefetch without content cache");
+        plain.close();
+        System.out.println("Prefetch checks passed!");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError("Check failed: " + message);
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package org.ballerinalang.lsp.filesystem;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Replays a recorded file-access trace concurrently across simulated sessions that
+ * share one provider, and reports throughput, latency percentiles and allocation.
+ *
+ * Usage: LoadTestHarness [--trace file] [--sessions n] [--threads n] [--paced] [--record file]
+ *
+ * Without --trace, a trace is recorded from a sample project opened and edited
+ * through the provider; --record saves it for later runs. --paced keeps the
+ * recorded gaps between operations instead of replaying back to back.
+ */
+public class LoadTestHarness {
+    private static final Set<StandardOpenOption> READ_OPTIONS = Set.of(StandardOpenOption.READ);
+    private static final Set<StandardOpenOption> WRITE_OPTIONS = Set.of(StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+
+    public static void main(String[] args) throws Exception {
+        Path traceFile = null;
+        Path recordFile = null;
+        int sessions = 50;
+        int threads = -1;
+        boolean paced = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--trace":
+                    traceFile = Paths.get(args[++i]);
+                    break;
+                case "--record":
+                    recordFile = Paths.get(args[++i]);
+                    break;
+                case "--sessions":
+                    sessions = Integer.parseInt(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--paced":
+                    paced = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (threads <= 0) {
+            threads = sessions;
+        }
+
+        // 1. Load or record the trace
+        FileAccessTrace trace = null;
+        List<FileAccessTrace.Event> events;
+        if (traceFile != null) {
+            events = FileAccessTrace.read(traceFile);
+        } else {
+            trace = recordSampleTrace();
+            events = trace.getEvents();
+        }
+        if (recordFile != null && trace != null) {
+            trace.writeTo(recordFile);
+            System.out.println("Recorded trace written to: " + recordFile);
+        }
+
+        // 2. Give every session its own copy of the files the trace expects
+        Path baseDir = Files.createTempDirectory("web-bala-load");
+        try {
+            for (int s = 0; s < sessions; s++) {
+                materialize(baseDir.resolve("session-" + s), events);
+            }
+            WebBalaFileSystemProvider provider = new WebBalaFileSystemProvider(baseDir);
+            WebBalaFileSystem fs = new WebBalaFileSystem(provider);
+
+            // 3. Replay all sessions at once and report
+            Result result = replay(fs, events, sessions, threads, paced);
+            result.print(sessions, threads);
+        } finally {
+            deleteRecursively(baseDir);
+        }
+    }
+
+    /**
+     * Records the operations of opening a small package, reading all of its sources
+     * and saving an edit, the way a session does when a project is opened.
+     */
+    static FileAccessTrace recordSampleTrace() throws IOException {
+        Path projectDir = Files.createTempDirectory("web-bala-trace");
+        try {
+            WebBalaFileSystemProvider provider = new WebBalaFileSystemProvider(projectDir);
+            WebBalaFileSystem fs = new WebBalaFileSystem(provider);
+            List<Path> sources = new ArrayList<>();
+            Files.writeString(fs.getPath("/Ballerina.toml"), "[package]\norg = \"sample\"\nname = \"app\"\n");
+            Files.writeString(fs.getPath("/Dependencies.toml"), "[ballerina]\ndependencies-toml-version = \"2\"\n");
+            sources.add(fs.getPath("/main.bal"));
+            Files.createDirectories(fs.getPath("/tests"));
+            for (int m = 0; m < 5; m++) {
+                Path module = fs.getPath("/modules/mod" + m);
+                Files.createDirectories(module);
+                for (int f = 0; f < 4; f++) {
+                    sources.add(module.resolve("file" + f + ".bal"));
+                }
+            }
+            for (int i = 0; i < sources.size(); i++) {
+                Files.writeString(sources.get(i), sampleSource(2048 << (i % 4)));
+            }
+
+            FileAccessTrace trace = new FileAccessTrace();
+            provider.setTrace(trace);
+            Path manifest = fs.getPath("/Ballerina.toml");
+            provider.checkAccess(manifest);
+            Files.readAllBytes(manifest);
+            Files.readAllBytes(fs.getPath("/Dependencies.toml"));
+            for (Path source : sources) {
+                provider.readAttributes(source, BasicFileAttributes.class);
+                Files.readAllBytes(source);
+            }
+            // A probe of the empty tests directory, a missing file probe, an edit and a build output directory
+            provider.readAttributes(fs.getPath("/tests"), BasicFileAttributes.class);
+            try {
+                provider.checkAccess(fs.getPath("/Cloud.toml"));
+            } catch (NoSuchFileException e) {
+                // Expected, recorded as a failed operation
+            }
+            Files.writeString(sources.get(0), sampleSource(4096));
+            Files.readAllBytes(sources.get(0));
+            Files.createDirectories(fs.getPath("/target/cache"));
+            provider.setTrace(null);
+            return trace;
+        } finally {
+            deleteRecursively(projectDir);
+        }
+    }
+
+    private static String sampleSource(int size) {
+        StringBuilder sb = new StringBuilder("import ballerina/io;\n\n");
+        int i = 0;
+        while (sb.length() < size) {
+            sb.append("function f").append(i++).append("() returns int {\n    return ").append(i).append(";\n}\n\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Creates the files and directories that existed when the trace was recorded:
+     * every ancestor of a traced path and every path traced as a directory is a
+     * directory, and every other path whose first operation succeeded is a file of
+     * the largest size seen for it.
+     */
+    static void materialize(Path sessionDir, List<FileAccessTrace.Event> events) throws IOException {
+        Set<String> directories = new HashSet<>();
+        Set<String> created = new HashSet<>();
+        Map<String, Long> files = new HashMap<>();
+        for (FileAccessTrace.Event event : events) {
+            String path = event.getPath();
+            for (int slash = path.lastIndexOf('/'); slash > 0; slash = path.lastIndexOf('/', slash - 1)) {
+                directories.add(path.substring(0, slash));
+            }
+            if (!files.containsKey(path) && !created.contains(path)) {
+                // The first operation on a path tells whether it existed before the trace
+                boolean existed = event.getSize() != FileAccessTrace.FAILED
+                        && event.getOp() != FileAccessTrace.Op.OPEN_WRITE
+                        && event.getOp() != FileAccessTrace.Op.CREATE_DIRECTORY;
+                if (!existed) {
+                    created.add(path);
+                    continue;
+                }
+            }
+            if (created.contains(path)) {
+                continue;
+            }
+            if (event.getSize() == FileAccessTrace.DIRECTORY) {
+                directories.add(path);
+            } else if (event.getSize() >= 0) {
+                files.merge(path, event.getSize(), Math::max);
+            }
+        }
+        Files.createDirectories(sessionDir);
+        for (String directory : directories) {
+            Files.createDirectories(sessionDir.resolve(directory));
+        }
+        for (Map.Entry<String, Long> file : files.entrySet()) {
+            if (!file.getKey().isEmpty() && !directories.contains(file.getKey())) {
+                byte[] content = new byte[(int) (long) file.getValue()];
+                Arrays.fill(content, (byte) 'x');
+                Files.write(sessionDir.resolve(file.getKey()), content);
+            }
+        }
+    }
+
+    static Result replay(WebBalaFileSystem fs, List<FileAccessTrace.Event> events, int sessions, int threads,
+            boolean paced) throws Exception {
+        WebBalaFileSystemProvider provider = (WebBalaFileSystemProvider) fs.provider();
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        long maxIo = 0;
+        for (FileAccessTrace.Event event : events) {
+            maxIo = Math.max(maxIo, event.getSize());
+        }
+        int bufferSize = (int) Math.max(maxIo, 1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<SessionResult>> futures = new ArrayList<>();
+        for (int s = 0; s < sessions; s++) {
+            String prefix = "/session-" + s + "/";
+            futures.add(executor.submit(() -> {
+                start.await();
+                SessionResult result = new SessionResult(events.size());
+                ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+                Map<String, Deque<SeekableByteChannel>> open = new HashMap<>();
+                long threadId = Thread.currentThread().getId();
+                long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+                long sessionStart = System.nanoTime();
+                for (FileAccessTrace.Event event : events) {
+                    if (paced) {
+                        long wait = sessionStart + event.getStartNanos() - System.nanoTime();
+                        if (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                    }
+                    Path path = fs.getPath(prefix + event.getPath());
+                    long opStart = System.nanoTime();
+                    boolean failed = false;
+                    try {
+                        apply(provider, path, event, buffer, open);
+                    } catch (IOException e) {
+                        failed = true;
+                    }
+                    result.add(event.getOp(), System.nanoTime() - opStart, failed != (event.getSize() == FileAccessTrace.FAILED));
+                }
+                for (Deque<SeekableByteChannel> channels : open.values()) {
+                    for (SeekableByteChannel channel : channels) {
+                        channel.close();
+                    }
+                }
+                result.allocatedBytes = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+                return result;
+            }));
+        }
+        long wallStart = System.nanoTime();
+        start.countDown();
+        Result total = new Result();
+        for (Future<SessionResult> future : futures) {
+            total.merge(future.get());
+        }
+        total.wallNanos = System.nanoTime() - wallStart;
+        executor.shutdown();
+        return total;
+    }
+
+    private static void apply(WebBalaFileSystemProvider provider, Path path, FileAccessTrace.Event event,
+            ByteBuffer buffer, Map<String, Deque<SeekableByteChannel>> open) throws IOException {
+        Deque<SeekableByteChannel> channels = open.computeIfAbsent(event.getPath(), p -> new ArrayDeque<>());
+        switch (event.getOp()) {
+            case CHECK_ACCESS:
+                provider.checkAccess(path);
+                break;
+            case READ_ATTRIBUTES:
+                provider.readAttributes(path, BasicFileAttributes.class);
+                break;
+            case OPEN_READ:
+                channels.push(provider.newByteChannel(path, READ_OPTIONS));
+                break;
+            case OPEN_WRITE:
+                channels.push(provider.newByteChannel(path, WRITE_OPTIONS));
+                break;
+            case READ:
+                if (!channels.isEmpty()) {
+                    buffer.clear().limit((int) Math.max(event.getSize(), 1));
+                    channels.peek().read(buffer);
+                }
+                break;
+            case WRITE:
+                if (!channels.isEmpty()) {
+                    buffer.clear().limit((int) Math.max(event.getSize(), 0));
+                    channels.peek().write(buffer);
+                }
+                break;
+            case CLOSE:
+                if (!channels.isEmpty()) {
+                    channels.pop().close();
+                }
+                break;
+            case CREATE_DIRECTORY:
+                provider.createDirectory(path);
+                break;
+            case DELETE:
+                provider.delete(path);
+                break;
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    static class SessionResult {
+        private final long[] latencies;
+        private final FileAccessTrace.Op[] ops;
+        private int count;
+        private int errors;
+        private long allocatedBytes;
+
+        SessionResult(int capacity) {
+            latencies = new long[capacity];
+            ops = new FileAccessTrace.Op[capacity];
+        }
+
+        void add(FileAccessTrace.Op op, long latencyNanos, boolean unexpected) {
+            ops[count] = op;
+            latencies[count++] = latencyNanos;
+            if (unexpected) {
+                errors++;
+            }
+        }
+    }
+
+    static class Result {
+        private final Map<FileAccessTrace.Op, List<Long>> latenciesByOp = new EnumMap<>(FileAccessTrace.Op.class);
+        private final List<Long> latencies = new ArrayList<>();
+        private int errors;
+        private long allocatedBytes;
+        private long wallNanos;
+
+        void merge(SessionResult session) {
+            for (int i = 0; i < session.count; i++) {
+                latencies.add(session.latencies[i]);
+                latenciesByOp.computeIfAbsent(session.ops[i], op -> new ArrayList<>()).add(session.latencies[i]);
+            }
+            errors += session.errors;
+            allocatedBytes += session.allocatedBytes;
+        }
+
+        void print(int sessions, int threads) {
+            double seconds = wallNanos / 1e9;
+            System.out.printf("Sessions: %d, threads: %d, operations: %d, unexpected results: %d%n",
+                    sessions, threads, latencies.size(), errors);
+            System.out.printf("Wall time: %.1f ms, throughput: %.0f ops/s%n", seconds * 1000,
+                    latencies.size() / seconds);
+            System.out.println("Latency (us): " + percentiles(latencies));
+            for (Map.Entry<FileAccessTrace.Op, List<Long>> entry : latenciesByOp.entrySet()) {
+                System.out.printf("  %-16s %8d ops  %s%n", entry.getKey(), entry.getValue().size(),
+                        percentiles(entry.getValue()));
+            }
+            System.out.printf("Allocated: %.1f MB (%.1f MB/s)%n", allocatedBytes / 1e6,
+                    allocatedBytes / 1e6 / seconds);
+        }
+
+        private static String percentiles(List<Long> values) {
+            long[] sorted = values.stream().mapToLong(Long::longValue).sorted().toArray();
+            if (sorted.length == 0) {
+                return "-";
+            }
+            return String.format("p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+                    at(sorted, 0.50), at(sorted, 0.90), at(sorted, 0.99), at(sorted, 0.999),
+                    sorted[sorted.length - 1] / 1e3);
+        }
+
+        private static double at(long[] sorted, double quantile) {
+            int index = (int) Math.ceil(quantile * sorted.length) - 1;
+            return sorted[Math.max(index, 0)] / 1e3;
+        }
+    }
+}